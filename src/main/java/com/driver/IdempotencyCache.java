@@ -0,0 +1,176 @@
+package com.driver;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public class IdempotencyCache {
+
+    // Longer client keys are rejected, which together with the fixed-size fingerprint
+    // keeps every entry small and the whole cache under a fixed memory ceiling
+    public static final int MAX_KEY_LENGTH = 255;
+
+    public interface Action<E extends Exception> {
+        String run() throws E;
+    }
+
+    private static class Entry {
+        private final String key;
+        private final byte[] fingerprint;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final long expiresAt;
+
+        Entry(String key, byte[] fingerprint, long expiresAt) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+
+    private final int capacity;
+    private final long ttlNanos;
+    private final long waitTimeoutNanos;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // Entries still in the cache, oldest first; used to evict by age and by size.
+    // Guarded by its own monitor, while replays only read the concurrent map
+    private final Set<Entry> insertionOrder = new LinkedHashSet<>();
+
+    public IdempotencyCache(int capacity, Duration ttl, Duration waitTimeout) {
+        this(capacity, ttl, waitTimeout, System::nanoTime);
+    }
+
+    public IdempotencyCache(int capacity, Duration ttl, Duration waitTimeout, LongSupplier clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.ttlNanos = ttl.toNanos();
+        this.waitTimeoutNanos = waitTimeout.toNanos();
+        this.clock = clock;
+    }
+
+    public <E extends Exception> String execute(String scope, String key, byte[] fingerprint, Action<E> action)
+            throws E {
+        if (key == null) {
+            return action.run();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Idempotency key is longer than " + MAX_KEY_LENGTH + " characters");
+        }
+
+        long now = clock.getAsLong();
+        String scopedKey = scope + "\n" + key;
+        Entry created = new Entry(scopedKey, fingerprint, now + ttlNanos);
+        Entry existing;
+        Entry replaced = null;
+        while ((existing = entries.putIfAbsent(scopedKey, created)) != null) {
+            if (!existing.isExpired(now)) {
+                if (!MessageDigest.isEqual(existing.fingerprint, fingerprint)) {
+                    throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                            "Idempotency key was already used with different request parameters");
+                }
+                // Retry of a request we have already seen (or are still running)
+                return await(existing);
+            }
+            if (entries.replace(scopedKey, existing, created)) {
+                replaced = existing;
+                break;
+            }
+        }
+
+        synchronized (insertionOrder) {
+            if (replaced != null) {
+                insertionOrder.remove(replaced);
+            }
+            insertionOrder.add(created);
+            evict(now);
+        }
+
+        try {
+            String result = action.run();
+            created.result.complete(result);
+            return result;
+        } catch (Exception | Error e) {
+            // Failed requests are not remembered so that the client can retry them,
+            // and do not take up room that successful entries could use
+            entries.remove(scopedKey, created);
+            synchronized (insertionOrder) {
+                insertionOrder.remove(created);
+            }
+            created.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public static byte[] fingerprint(Object... values) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object value : values) {
+                // Length-prefix each value so that ("ab", "c") and ("a", "bc") differ
+                byte[] bytes = String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+                digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+                digest.update(bytes);
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Must be called while holding the insertionOrder monitor
+    private void evict(long now) {
+        Iterator<Entry> oldestFirst = insertionOrder.iterator();
+        while (oldestFirst.hasNext()) {
+            Entry oldest = oldestFirst.next();
+            if (insertionOrder.size() <= capacity && !oldest.isExpired(now)) {
+                break;
+            }
+            oldestFirst.remove();
+            entries.remove(oldest.key, oldest);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E extends Exception> String await(Entry entry) throws E {
+        try {
+            return entry.result.get(waitTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "A request with this idempotency key is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an in-flight request", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            // The original request ran the same action, so it can only have thrown E
+            throw (E) cause;
+        }
+    }
+}
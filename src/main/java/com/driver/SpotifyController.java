@@ -1,13 +1,19 @@
 package com.driver;
 
+import java.time.Duration;
 import java.util.List;
 
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("spotify")
@@ -16,28 +22,39 @@ public class SpotifyController {
     // Autowire will not work in this case, no need to change this and add autowire
     SpotifyService spotifyService = new SpotifyService();
 
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    // Results of write requests sent with an Idempotency-Key header, so that client
+    // retries get the original answer back without running the request again
+    IdempotencyCache idempotencyCache = new IdempotencyCache(10_000, Duration.ofMinutes(10), Duration.ofSeconds(10));
+
     @PostMapping("/add-user")
     public String createUser(@RequestParam(name = "name") String name, String mobile) {
         // create the user with given name and number
 
-        spotifyService.createUser(name, mobile);
-
-        return "Success";
+        return idempotent("add-user", () -> {
+            spotifyService.createUser(name, mobile);
+            return "Success";
+        }, name, mobile);
     }
 
     @PostMapping("/add-artist")
     public String createArtist(@RequestParam(name = "name") String name) {
         // create the artist with given name
-        spotifyService.createArtist(name);
-        return "Success";
+        return idempotent("add-artist", () -> {
+            spotifyService.createArtist(name);
+            return "Success";
+        }, name);
     }
 
     @PostMapping("/add-album")
     public String createAlbum(@RequestParam(name = "title") String title, String artistName) {
         // If the artist does not exist, first create an artist with given name
         // Create an album with given title and artist
-        spotifyService.createAlbum(title, artistName);
-        return "Success";
+        return idempotent("add-album", () -> {
+            spotifyService.createAlbum(title, artistName);
+            return "Success";
+        }, title, artistName);
     }
 
     @PostMapping("/add-song")
@@ -45,9 +62,10 @@ public class SpotifyController {
         // If the album does not exist in database, throw "Album does not exist"
         // exception
         // Create and add the song to respective album
-        spotifyService.createSong(title, albumName, length);
-
-        return "Success";
+        return idempotent("add-song", () -> {
+            spotifyService.createSong(title, albumName, length);
+            return "Success";
+        }, title, albumName, length);
     }
 
     @PostMapping("/add-playlist-on-length")
@@ -58,9 +76,10 @@ public class SpotifyController {
         // The creater of the playlist will be the given user and will also be the
         // only listener at the time of playlist creation
         // If the user does not exist, throw "User does not exist" exception
-        spotifyService.createPlaylistOnLength(mobile, title, length);
-
-        return "Success";
+        return idempotent("add-playlist-on-length", () -> {
+            spotifyService.createPlaylistOnLength(mobile, title, length);
+            return "Success";
+        }, mobile, title, length);
     }
 
     @PostMapping("/add-playlist-on-name")
@@ -70,9 +89,10 @@ public class SpotifyController {
         // The creater of the playlist will be the given user and will also be the
         // only listener at the time of playlist creation
         // If the user does not exist, throw "User does not exist" exception
-        spotifyService.createPlaylistOnName(mobile, title, songTitles);
-
-        return "Success";
+        return idempotent("add-playlist-on-name", () -> {
+            spotifyService.createPlaylistOnName(mobile, title, songTitles);
+            return "Success";
+        }, mobile, title, songTitles);
     }
 
     @PutMapping("/find-playlist")
@@ -84,9 +104,10 @@ public class SpotifyController {
         // If the playlist does not exists, throw "Playlist does not exist" exception
         // Return the playlist after updating
 
-        spotifyService.findPlaylist(mobile, playlistTitle);
-
-        return "Success";
+        return idempotent("find-playlist", () -> {
+            spotifyService.findPlaylist(mobile, playlistTitle);
+            return "Success";
+        }, mobile, playlistTitle);
     }
 
     @PutMapping("/like-song")
@@ -100,9 +121,10 @@ public class SpotifyController {
         // If the user does not exist, throw "User does not exist" exception
         // If the song does not exist, throw "Song does not exist" exception
         // Return the song after updating
-        spotifyService.likeSong(mobile, songTitle);
-
-        return "Success";
+        return idempotent("like-song", () -> {
+            spotifyService.likeSong(mobile, songTitle);
+            return "Success";
+        }, mobile, songTitle);
     }
 
     @GetMapping("/popular-artist")
@@ -116,4 +138,35 @@ public class SpotifyController {
         // return the song title with maximum likes
         return spotifyService.mostPopularSong();
     }
+
+    @GetMapping(value = "/export/{entity}", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportCatalog(@PathVariable("entity") String entity,
+            @RequestParam(name = "cursor", defaultValue = "0") int cursor,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "artistName", required = false) String artistName,
+            @RequestParam(name = "minLength", required = false) Integer minLength,
+            @RequestParam(name = "maxLength", required = false) Integer maxLength) {
+        // Stream users, artists, albums, songs or playlists as one JSON object per line
+        // Start from the given cursor and stop after limit entities (all remaining if no limit)
+        // Albums can be filtered by artist, songs by artist and by length range
+        // The last line holds the cursor for the next page, or null once the list is exhausted
+        // Invalid parameters are rejected with 400 and an unknown artist with 404, before anything is written
+        // Without a limit the whole list is streamed; see spring.mvc.async.request-timeout
+        return ResponseEntity.ok(spotifyService.exportCatalog(entity, cursor, limit, artistName, minLength, maxLength));
+    }
+
+    private <E extends Exception> String idempotent(String endpoint, IdempotencyCache.Action<E> action,
+            Object... params) throws E {
+        // Read the header from the current request so the handler signatures stay unchanged
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return action.run();
+        }
+        String key = attributes.getRequest().getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (key == null || key.isEmpty()) {
+            return action.run();
+        }
+        // Keys are scoped per endpoint; a key reused with other parameters is rejected by the fingerprint
+        return idempotencyCache.execute(endpoint, key, IdempotencyCache.fingerprint(params), action);
+    }
 }
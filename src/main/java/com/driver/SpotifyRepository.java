@@ -1,14 +1,30 @@
 package com.driver;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 
 import org.springframework.stereotype.Repository;
 
 @Repository
 public class SpotifyRepository {
+    // Number of entries copied out of a list per lock acquisition during an export
+    public static final int EXPORT_CHUNK_SIZE = 512;
+
+    public interface ExportSink<T> {
+        void accept(T item) throws IOException;
+
+        // Called once after each chunk has been handed to accept()
+        default void endOfChunk() throws IOException {
+        }
+    }
+
     public HashMap<Artist, List<Album>> artistAlbumMap;
     public HashMap<Album, List<Song>> albumSongMap;
     public HashMap<Playlist, List<Song>> playlistSongMap;
@@ -44,25 +60,23 @@ public class SpotifyRepository {
         User user = new User();
         user.setName(name);
         user.setMobile(mobile);
-        users.add(user);
+        synchronized (users) {
+            users.add(user);
+        }
         return user;
     }
 
     public Artist createArtist(String name) {
         Artist artist = new Artist();
         artist.setName(name);
-        artists.add(artist);
+        synchronized (artists) {
+            artists.add(artist);
+        }
         return artist;
     }
 
     public Album createAlbum(String title, String artistName) {
-        Artist existingArtist = null;
-        for (Artist artist : artists) {
-            if (artist.getName().equalsIgnoreCase(artistName)) {
-                existingArtist = artist;
-                break;
-            }
-        }
+        Artist existingArtist = lookupArtist(artistName);
 
         if (existingArtist == null) {
             existingArtist = createArtist(artistName);
@@ -70,27 +84,33 @@ public class SpotifyRepository {
 
         Album album = new Album();
         album.setTitle(title);
-        albums.add(album);
+        synchronized (albums) {
+            albums.add(album);
+        }
 
-        artistAlbumMap.computeIfAbsent(existingArtist, k -> new ArrayList<>()).add(album);
+        synchronized (artistAlbumMap) {
+            artistAlbumMap.computeIfAbsent(existingArtist, k -> new ArrayList<>()).add(album);
+        }
 
         return album;
     }
 
     public Song createSong(String title, String albumName, int length) throws Exception {
-
-        for (Album album : albums) {
-            if (album.getTitle().equalsIgnoreCase(albumName)) {
-                Song song = new Song();
-                song.setTitle(title);
-                song.setLength(length);
-                songs.add(song);
-                albumSongMap.computeIfAbsent(album, k -> new ArrayList<>()).add(song);
-                return song;
-            }
+        Album album = lookupAlbum(albumName);
+        if (album == null) {
+            throw new Exception();
         }
 
-        throw new Exception();
+        Song song = new Song();
+        song.setTitle(title);
+        song.setLength(length);
+        synchronized (songs) {
+            songs.add(song);
+        }
+        synchronized (albumSongMap) {
+            albumSongMap.computeIfAbsent(album, k -> new ArrayList<>()).add(song);
+        }
+        return song;
     }
 
     public Playlist createPlaylistOnLength(String mobile, String title, int length) throws Exception {
@@ -100,13 +120,7 @@ public class SpotifyRepository {
             throw new Exception("Users or Songs list is not initialized.");
         }
 
-        User currentUser = null;
-        for (User user : users) {
-            if (user.getMobile().equalsIgnoreCase(mobile)) {
-                currentUser = user; // Found the user with the given mobile number
-                break;
-            }
-        }
+        User currentUser = lookupUser(mobile); // Find the user with the given mobile number
 
         if (currentUser == null) {
             throw new Exception("User not found for mobile: " + mobile);
@@ -118,9 +132,11 @@ public class SpotifyRepository {
 
         // Filter songs based on the given length
         List<Song> filteredSongs = new ArrayList<>();
-        for (Song song : songs) {
-            if (song.getLength() == length) {
-                filteredSongs.add(song);
+        synchronized (songs) {
+            for (Song song : songs) {
+                if (song.getLength() == length) {
+                    filteredSongs.add(song);
+                }
             }
         }
 
@@ -129,10 +145,14 @@ public class SpotifyRepository {
         }
 
         // Add the playlist to the list of playlists
-        playlists.add(playlist);
+        synchronized (playlists) {
+            playlists.add(playlist);
+        }
 
         // Map the playlist to the filtered songs
-        playlistSongMap.computeIfAbsent(playlist, k -> new ArrayList<>()).addAll(filteredSongs);
+        synchronized (playlistSongMap) {
+            playlistSongMap.computeIfAbsent(playlist, k -> new ArrayList<>()).addAll(filteredSongs);
+        }
 
         return playlist;
     }
@@ -145,13 +165,7 @@ public class SpotifyRepository {
             throw new Exception("Users or Songs list is not initialized.");
         }
 
-        User currentUser = null;
-        for (User user : users) {
-            if (user.getMobile().equalsIgnoreCase(mobile)) {
-                currentUser = user; // Found the user with the given mobile number
-                break;
-            }
-        }
+        User currentUser = lookupUser(mobile); // Find the user with the given mobile number
 
         if (currentUser == null) {
             throw new Exception("User not found for mobile: " + mobile);
@@ -163,71 +177,64 @@ public class SpotifyRepository {
 
         List<Song> selectedSongs = new ArrayList<>();
         for (String songTitle : songTitles) {
-            boolean songFound = false;
-            for (Song song : songs) {
-                if (song.getTitle().equalsIgnoreCase(songTitle)) {
-                    selectedSongs.add(song);
-                    songFound = true;
-                    break;
-                }
-            }
-            if (!songFound) {
+            Song song = lookupSong(songTitle);
+            if (song == null) {
                 throw new Exception("Song with title '" + songTitle + "' not found.");
             }
+            selectedSongs.add(song);
         }
 
         // Add the playlist to the playlists list
-        playlists.add(playlist);
+        synchronized (playlists) {
+            playlists.add(playlist);
+        }
 
         // Map the playlist to the selected songs
-        playlistSongMap.computeIfAbsent(playlist, k -> new ArrayList<>()).addAll(selectedSongs);
+        synchronized (playlistSongMap) {
+            playlistSongMap.computeIfAbsent(playlist, k -> new ArrayList<>()).addAll(selectedSongs);
+        }
 
         // Map the playlist to the user (creator) and the listeners
-        playlistListenerMap.computeIfAbsent(playlist, k -> new ArrayList<>()).add(currentUser);
-        creatorPlaylistMap.put(currentUser, playlist);
-        userPlaylistMap.computeIfAbsent(currentUser, k -> new ArrayList<>()).add(playlist);
+        synchronized (playlistListenerMap) {
+            playlistListenerMap.computeIfAbsent(playlist, k -> new ArrayList<>()).add(currentUser);
+        }
+        synchronized (creatorPlaylistMap) {
+            creatorPlaylistMap.put(currentUser, playlist);
+        }
+        synchronized (userPlaylistMap) {
+            userPlaylistMap.computeIfAbsent(currentUser, k -> new ArrayList<>()).add(playlist);
+        }
 
         return playlist;
     }
 
     public Playlist findPlaylist(String mobile, String playlistTitle) throws Exception {
-        Playlist foundPlaylist = null;
-        User currentUser = null;
-
         // Find the current user
-        for (User user : users) {
-            if (user.getMobile().equalsIgnoreCase(mobile)) {
-                currentUser = user;
-                break;
-            }
-        }
+        User currentUser = lookupUser(mobile);
 
         if (currentUser == null) {
             throw new Exception("User with mobile " + mobile + " not found.");
         }
 
         // Find the playlist
-        for (Playlist playlist : playlists) {
-            if (playlist.getTitle().equalsIgnoreCase(playlistTitle)) {
-                foundPlaylist = playlist;
-                break;
-            }
-        }
+        Playlist foundPlaylist = lookupPlaylist(playlistTitle);
 
         if (foundPlaylist == null) {
             throw new Exception("Playlist with title " + playlistTitle + " not found.");
         }
 
-        // Ensure playlistListenerMap is initialized (already done in constructor)
-        List<User> listeners = playlistListenerMap.computeIfAbsent(foundPlaylist, k -> new ArrayList<>());
+        boolean isCreator;
+        synchronized (creatorPlaylistMap) {
+            isCreator = creatorPlaylistMap.get(currentUser) == foundPlaylist;
+        }
 
-        // Check if the user is the creator or a listener
-        boolean isListener = listeners.contains(currentUser);
-        boolean isCreator = creatorPlaylistMap.get(currentUser) == foundPlaylist;
+        synchronized (playlistListenerMap) {
+            List<User> listeners = playlistListenerMap.computeIfAbsent(foundPlaylist, k -> new ArrayList<>());
 
-        // If the user is neither a listener nor the creator, add them as a listener
-        if (!isListener && !isCreator) {
-            listeners.add(currentUser);
+            // If the user is neither a listener nor the creator, add them as a listener
+            if (!listeners.contains(currentUser) && !isCreator) {
+                listeners.add(currentUser);
+            }
         }
 
         return foundPlaylist;
@@ -235,59 +242,51 @@ public class SpotifyRepository {
 
     public Song likeSong(String mobile, String songTitle) throws Exception {
 
-        Song foundSong = null;
-
         // Find the song
-        for (Song song : songs) {
-            if (song.getTitle().equalsIgnoreCase(songTitle)) {
-                foundSong = song;
-                break;
-            }
-        }
+        Song foundSong = lookupSong(songTitle);
         if (foundSong == null) {
             throw new Exception("Song with title " + songTitle + " not found!");
         }
 
-        User foundUser = null;
-
         // Find the user
-        for (User user : users) {
-            if (user.getMobile().equalsIgnoreCase(mobile)) {
-                foundUser = user;
-                break;
-            }
-        }
+        User foundUser = lookupUser(mobile);
         if (foundUser == null) {
             throw new Exception("User with mobile " + mobile + " not found!");
         }
 
         // Ensure that user has not already liked the song
-        List<User> songLikers = songLikeMap.computeIfAbsent(foundSong, k -> new ArrayList<>());
-        if (songLikers.contains(foundUser)) {
-            // Return the song if already liked (optional: just skip the like)
-            return foundSong;
-        }
+        synchronized (songLikeMap) {
+            List<User> songLikers = songLikeMap.computeIfAbsent(foundSong, k -> new ArrayList<>());
+            if (songLikers.contains(foundUser)) {
+                // Return the song if already liked (optional: just skip the like)
+                return foundSong;
+            }
 
-        // Add user to song likers and increase like count
-        songLikers.add(foundUser);
-        foundSong.setLikes(foundSong.getLikes() + 1);
+            // Add user to song likers and increase like count
+            songLikers.add(foundUser);
+            foundSong.setLikes(foundSong.getLikes() + 1);
+        }
 
         // Handle the album and artist's like count increment
         Album foundAlbum = null;
-        for (Map.Entry<Album, List<Song>> entry : albumSongMap.entrySet()) {
-            List<Song> albumSongs = entry.getValue();
-            if (albumSongs.contains(foundSong)) {
-                foundAlbum = entry.getKey();
-                break;
+        synchronized (albumSongMap) {
+            for (Map.Entry<Album, List<Song>> entry : albumSongMap.entrySet()) {
+                List<Song> albumSongs = entry.getValue();
+                if (albumSongs.contains(foundSong)) {
+                    foundAlbum = entry.getKey();
+                    break;
+                }
             }
         }
 
         if (foundAlbum != null) {
-            for (Map.Entry<Artist, List<Album>> entry : artistAlbumMap.entrySet()) {
-                List<Album> albums = entry.getValue();
-                if (albums.contains(foundAlbum)) {
-                    entry.getKey().setLikes(entry.getKey().getLikes() + 1);
-                    break;
+            synchronized (artistAlbumMap) {
+                for (Map.Entry<Artist, List<Album>> entry : artistAlbumMap.entrySet()) {
+                    List<Album> albums = entry.getValue();
+                    if (albums.contains(foundAlbum)) {
+                        entry.getKey().setLikes(entry.getKey().getLikes() + 1);
+                        break;
+                    }
                 }
             }
         }
@@ -300,14 +299,16 @@ public class SpotifyRepository {
         String mostPopularArtist = null;
         int maxLikes = 0;
 
-        if (artists.isEmpty()) {
-            return "Artist not found!!";
-        }
+        synchronized (artists) {
+            if (artists.isEmpty()) {
+                return "Artist not found!!";
+            }
 
-        for (Artist artist : artists) {
-            if (artist.getLikes() > maxLikes) {
-                maxLikes = artist.getLikes();
-                mostPopularArtist = artist.getName();
+            for (Artist artist : artists) {
+                if (artist.getLikes() > maxLikes) {
+                    maxLikes = artist.getLikes();
+                    mostPopularArtist = artist.getName();
+                }
             }
         }
 
@@ -319,17 +320,141 @@ public class SpotifyRepository {
         String mostPopularSong = null;
         int maxLikes = 0;
 
-        if (songs.isEmpty()) {
-            return "Song not found!!";
-        }
+        synchronized (songs) {
+            if (songs.isEmpty()) {
+                return "Song not found!!";
+            }
 
-        for (Song song : songs) {
-            if (song.getLikes() > maxLikes) {
-                maxLikes = song.getLikes();
-                mostPopularSong = song.getTitle();
+            for (Song song : songs) {
+                if (song.getLikes() > maxLikes) {
+                    maxLikes = song.getLikes();
+                    mostPopularSong = song.getTitle();
+                }
             }
         }
 
         return (mostPopularSong != null) ? mostPopularSong : "No song with likes found!";
     }
+
+    // Every read and write of a list or map below holds that collection's own monitor,
+    // never more than one at a time, so exports and concurrent writers cannot deadlock
+
+    private User lookupUser(String mobile) {
+        synchronized (users) {
+            for (User user : users) {
+                if (user.getMobile().equalsIgnoreCase(mobile)) {
+                    return user;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Artist lookupArtist(String name) {
+        synchronized (artists) {
+            for (Artist artist : artists) {
+                if (artist.getName().equalsIgnoreCase(name)) {
+                    return artist;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Album lookupAlbum(String title) {
+        synchronized (albums) {
+            for (Album album : albums) {
+                if (album.getTitle().equalsIgnoreCase(title)) {
+                    return album;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Song lookupSong(String title) {
+        synchronized (songs) {
+            for (Song song : songs) {
+                if (song.getTitle().equalsIgnoreCase(title)) {
+                    return song;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Playlist lookupPlaylist(String title) {
+        synchronized (playlists) {
+            for (Playlist playlist : playlists) {
+                if (playlist.getTitle().equalsIgnoreCase(title)) {
+                    return playlist;
+                }
+            }
+        }
+        return null;
+    }
+
+    public <T> int exportPage(List<T> source, int cursor, int limit, Predicate<T> filter,
+            ExportSink<T> sink) throws IOException {
+        // Copy one bounded chunk at a time under the list lock and write it out
+        // after releasing the lock, so writers are only held up for a single chunk
+        List<T> chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+        int position = cursor;
+        int emitted = 0;
+
+        while (emitted < limit) {
+            chunk.clear();
+            synchronized (source) {
+                int end = Math.min(source.size(), position + EXPORT_CHUNK_SIZE);
+                if (position >= end) {
+                    return -1; // Nothing left to export
+                }
+                chunk.addAll(source.subList(position, end));
+            }
+
+            for (T item : chunk) {
+                position++;
+                if (filter.test(item)) {
+                    sink.accept(item);
+                    emitted++;
+                    if (emitted == limit) {
+                        break;
+                    }
+                }
+            }
+            sink.endOfChunk();
+        }
+
+        synchronized (source) {
+            // A page that ends exactly on the last entry is also the final page
+            return (position >= source.size()) ? -1 : position;
+        }
+    }
+
+    public Artist findArtist(String artistName) throws Exception {
+        Artist artist = lookupArtist(artistName);
+        if (artist == null) {
+            throw new Exception("Artist with name " + artistName + " not found.");
+        }
+        return artist;
+    }
+
+    public Set<Album> albumsOfArtist(Artist artist) {
+        Set<Album> artistAlbums = Collections.newSetFromMap(new IdentityHashMap<>());
+        synchronized (artistAlbumMap) {
+            artistAlbums.addAll(artistAlbumMap.getOrDefault(artist, Collections.emptyList()));
+        }
+        return artistAlbums;
+    }
+
+    public Set<Song> songsOfArtist(Artist artist) {
+        Set<Album> artistAlbums = albumsOfArtist(artist);
+        Set<Song> artistSongs = Collections.newSetFromMap(new IdentityHashMap<>());
+        synchronized (albumSongMap) {
+            for (Album album : artistAlbums) {
+                artistSongs.addAll(albumSongMap.getOrDefault(album, Collections.emptyList()));
+            }
+        }
+        return artistSongs;
+    }
 }
@@ -1,8 +1,22 @@
 package com.driver;
 
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 @Service
 public class SpotifyService {
@@ -11,6 +25,10 @@ public class SpotifyService {
 
     SpotifyRepository spotifyRepository = new SpotifyRepository();
 
+    // Closing an export's writer must not close the response stream underneath it
+    private static final ObjectMapper EXPORT_MAPPER = new ObjectMapper(
+            JsonFactory.builder().disable(StreamWriteFeature.AUTO_CLOSE_TARGET).build());
+
     public User createUser(String name, String mobile) {
         return spotifyRepository.createUser(name, mobile);
     }
@@ -54,4 +72,95 @@ public class SpotifyService {
     public String mostPopularSong() {
         return spotifyRepository.mostPopularSong();
     }
+
+    public StreamingResponseBody exportCatalog(String entity, int cursor, Integer limit, String artistName,
+            Integer minLength, Integer maxLength) {
+        if (cursor < 0) {
+            throw badRequest("Cursor must not be negative: " + cursor);
+        }
+        if (limit != null && limit <= 0) {
+            throw badRequest("Limit must be positive: " + limit);
+        }
+        if (minLength != null && maxLength != null && minLength > maxLength) {
+            throw badRequest("minLength " + minLength + " is greater than maxLength " + maxLength);
+        }
+        int pageSize = (limit == null) ? Integer.MAX_VALUE : limit;
+
+        String type = entity.toLowerCase(Locale.ROOT);
+        if (artistName != null && !type.equals("albums") && !type.equals("songs")) {
+            throw badRequest("artistName can only filter albums or songs, not " + entity);
+        }
+        if ((minLength != null || maxLength != null) && !type.equals("songs")) {
+            throw badRequest("minLength and maxLength can only filter songs, not " + entity);
+        }
+
+        switch (type) {
+            case "users":
+                return stream(spotifyRepository.users, cursor, pageSize, user -> true);
+            case "artists":
+                return stream(spotifyRepository.artists, cursor, pageSize, artist -> true);
+            case "playlists":
+                return stream(spotifyRepository.playlists, cursor, pageSize, playlist -> true);
+            case "albums": {
+                Predicate<Album> filter = album -> true;
+                if (artistName != null) {
+                    Set<Album> artistAlbums = spotifyRepository.albumsOfArtist(exportedArtist(artistName));
+                    filter = artistAlbums::contains;
+                }
+                return stream(spotifyRepository.albums, cursor, pageSize, filter);
+            }
+            case "songs": {
+                int min = (minLength == null) ? Integer.MIN_VALUE : minLength;
+                int max = (maxLength == null) ? Integer.MAX_VALUE : maxLength;
+                Set<Song> artistSongs = (artistName == null) ? null
+                        : spotifyRepository.songsOfArtist(exportedArtist(artistName));
+                Predicate<Song> filter = song -> song.getLength() >= min && song.getLength() <= max
+                        && (artistSongs == null || artistSongs.contains(song));
+                return stream(spotifyRepository.songs, cursor, pageSize, filter);
+            }
+            default:
+                throw badRequest("Unknown catalog entity: " + entity);
+        }
+    }
+
+    private Artist exportedArtist(String artistName) {
+        try {
+            return spotifyRepository.findArtist(artistName);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    private static ResponseStatusException badRequest(String reason) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, reason);
+    }
+
+    private <T> StreamingResponseBody stream(List<T> source, int cursor, int limit, Predicate<T> filter) {
+        // Each entity is written as one NDJSON line; the output is flushed once per
+        // repository chunk rather than per entity. The last line carries the cursor
+        // to pass back for the next page (null when done)
+        return out -> {
+            try (SequenceWriter writer = EXPORT_MAPPER.writer()
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .withRootValueSeparator("\n")
+                    .writeValues(out)) {
+                int next = spotifyRepository.exportPage(source, cursor, limit, filter,
+                        new SpotifyRepository.ExportSink<T>() {
+                            @Override
+                            public void accept(T item) throws IOException {
+                                writer.write(item);
+                            }
+
+                            @Override
+                            public void endOfChunk() throws IOException {
+                                writer.flush();
+                            }
+                        });
+                Integer nextCursor = (next < 0) ? null : next;
+                writer.write(Collections.singletonMap("nextCursor", nextCursor));
+            }
+            out.write('\n');
+            out.flush();
+        };
+    }
 }
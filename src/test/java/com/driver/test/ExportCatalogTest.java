@@ -0,0 +1,140 @@
+package com.driver.test;
+
+import com.driver.*;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExportCatalogTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private SpotifyService spotifyService;
+
+    @BeforeEach
+    public void setUp() {
+        spotifyService = new SpotifyService();
+    }
+
+    @Test
+    public void pagesAcrossChunkBoundaryWithNextCursor() throws Exception {
+        int total = SpotifyRepository.EXPORT_CHUNK_SIZE + 100;
+        for (int i = 0; i < total; i++) {
+            spotifyService.createUser("user" + i, "mobile" + i);
+        }
+
+        List<String> mobiles = new ArrayList<>();
+        Integer cursor = 0;
+        int pages = 0;
+        while (cursor != null) {
+            List<JsonNode> lines = export("users", cursor, 300, null, null, null);
+            for (JsonNode line : lines.subList(0, lines.size() - 1)) {
+                mobiles.add(line.get("mobile").asText());
+            }
+            JsonNode next = lines.get(lines.size() - 1).get("nextCursor");
+            cursor = next.isNull() ? null : next.asInt();
+            pages++;
+        }
+
+        assertEquals(3, pages);
+        assertEquals(total, mobiles.size());
+        for (int i = 0; i < total; i++) {
+            assertEquals("mobile" + i, mobiles.get(i));
+        }
+    }
+
+    @Test
+    public void limitEndingOnLastEntryIsFinalPage() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            spotifyService.createArtist("artist" + i);
+        }
+
+        List<JsonNode> firstPage = export("artists", 0, 2, null, null, null);
+        assertEquals(3, firstPage.size());
+        assertEquals(2, firstPage.get(2).get("nextCursor").asInt());
+
+        List<JsonNode> lastPage = export("artists", 2, 2, null, null, null);
+        assertEquals(3, lastPage.size());
+        assertEquals("artist3", lastPage.get(1).get("name").asText());
+        assertTrue(lastPage.get(2).get("nextCursor").isNull());
+    }
+
+    @Test
+    public void fullDumpEndsWithNullCursor() throws Exception {
+        spotifyService.createArtist("solo");
+
+        List<JsonNode> lines = export("artists", 0, null, null, null, null);
+        assertEquals(2, lines.size());
+        assertEquals("solo", lines.get(0).get("name").asText());
+        assertEquals("{\"nextCursor\":null}", lines.get(1).toString());
+    }
+
+    @Test
+    public void filtersSongsByArtistAndLength() throws Exception {
+        spotifyService.createAlbum("first", "alpha");
+        spotifyService.createAlbum("second", "beta");
+        spotifyService.createSong("a-short", "first", 100);
+        spotifyService.createSong("a-long", "first", 300);
+        spotifyService.createSong("b-short", "second", 120);
+        spotifyService.createSong("a-mid", "first", 200);
+
+        assertEquals(List.of("a-short", "a-long", "a-mid"),
+                titles(export("songs", 0, null, "alpha", null, null)));
+        assertEquals(List.of("a-short", "b-short", "a-mid"),
+                titles(export("songs", 0, null, null, 100, 200)));
+        assertEquals(List.of("a-mid"),
+                titles(export("songs", 0, null, "alpha", 150, null)));
+        assertEquals(List.of("second"),
+                titles(export("albums", 0, null, "beta", null, null)));
+    }
+
+    @Test
+    public void rejectsInvalidRequests() {
+        spotifyService.createArtist("known");
+
+        assertStatus(HttpStatus.BAD_REQUEST, () -> spotifyService.exportCatalog("genres", 0, null, null, null, null));
+        assertStatus(HttpStatus.BAD_REQUEST, () -> spotifyService.exportCatalog("users", -1, null, null, null, null));
+        assertStatus(HttpStatus.BAD_REQUEST, () -> spotifyService.exportCatalog("users", 0, 0, null, null, null));
+        assertStatus(HttpStatus.BAD_REQUEST, () -> spotifyService.exportCatalog("songs", 0, null, null, 300, 100));
+        assertStatus(HttpStatus.BAD_REQUEST, () -> spotifyService.exportCatalog("users", 0, null, "known", null, null));
+        assertStatus(HttpStatus.BAD_REQUEST, () -> spotifyService.exportCatalog("albums", 0, null, null, 100, null));
+        assertStatus(HttpStatus.NOT_FOUND, () -> spotifyService.exportCatalog("songs", 0, null, "unknown", null, null));
+    }
+
+    private List<JsonNode> export(String entity, int cursor, Integer limit, String artistName,
+            Integer minLength, Integer maxLength) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        spotifyService.exportCatalog(entity, cursor, limit, artistName, minLength, maxLength).writeTo(out);
+
+        String body = out.toString(StandardCharsets.UTF_8);
+        assertTrue(body.endsWith("\n"));
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            lines.add(MAPPER.readTree(line));
+        }
+        return lines;
+    }
+
+    private static List<String> titles(List<JsonNode> lines) {
+        List<String> titles = new ArrayList<>();
+        for (JsonNode line : lines.subList(0, lines.size() - 1)) {
+            titles.add(line.get("title").asText());
+        }
+        return titles;
+    }
+
+    private static void assertStatus(HttpStatus status, Runnable export) {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, export::run);
+        assertEquals(status, e.getStatus());
+    }
+}
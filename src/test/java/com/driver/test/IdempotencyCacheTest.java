@@ -0,0 +1,180 @@
+package com.driver.test;
+
+import com.driver.IdempotencyCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyCacheTest {
+
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger runs = new AtomicInteger();
+
+    private IdempotencyCache cache(int capacity) {
+        return new IdempotencyCache(capacity, TTL, Duration.ofSeconds(5), clock::get);
+    }
+
+    private String countedRun() {
+        return "run-" + runs.incrementAndGet();
+    }
+
+    @Test
+    public void replaysResultWithinTtl() {
+        IdempotencyCache cache = cache(10);
+        byte[] fingerprint = IdempotencyCache.fingerprint("a", 1);
+
+        assertEquals("run-1", cache.execute("add-song", "key", fingerprint, this::countedRun));
+        clock.addAndGet(TTL.toNanos() - 1);
+        assertEquals("run-1", cache.execute("add-song", "key", fingerprint, this::countedRun));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void rerunsAfterExpiry() {
+        IdempotencyCache cache = cache(10);
+        byte[] fingerprint = IdempotencyCache.fingerprint("a");
+
+        assertEquals("run-1", cache.execute("add-user", "key", fingerprint, this::countedRun));
+        clock.addAndGet(TTL.toNanos());
+        assertEquals("run-2", cache.execute("add-user", "key", fingerprint, this::countedRun));
+        assertEquals("run-2", cache.execute("add-user", "key", fingerprint, this::countedRun));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void doesNotCacheFailures() throws Exception {
+        IdempotencyCache cache = cache(10);
+        byte[] fingerprint = IdempotencyCache.fingerprint("a");
+
+        Exception failure = assertThrows(Exception.class, () -> cache.execute("like-song", "key", fingerprint, () -> {
+            runs.incrementAndGet();
+            throw new Exception("Song does not exist");
+        }));
+        assertEquals("Song does not exist", failure.getMessage());
+        assertEquals(0, cache.size());
+
+        assertEquals("run-2", cache.execute("like-song", "key", fingerprint, this::countedRun));
+    }
+
+    @Test
+    public void rejectsReusedKeyWithDifferentParameters() {
+        IdempotencyCache cache = cache(10);
+        cache.execute("add-song", "key", IdempotencyCache.fingerprint("ab", "c"), this::countedRun);
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> cache.execute("add-song", "key", IdempotencyCache.fingerprint("a", "bc"), this::countedRun));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, e.getStatus());
+
+        // The same key in another scope is unrelated
+        assertEquals("run-2", cache.execute("like-song", "key", IdempotencyCache.fingerprint("x"), this::countedRun));
+    }
+
+    @Test
+    public void rejectsOverlongKeys() {
+        IdempotencyCache cache = cache(10);
+        String key = "k".repeat(IdempotencyCache.MAX_KEY_LENGTH + 1);
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> cache.execute("add-user", key, IdempotencyCache.fingerprint(), this::countedRun));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void concurrentDuplicatesRunActionOnce() throws Exception {
+        IdempotencyCache cache = cache(10);
+        byte[] fingerprint = IdempotencyCache.fingerprint("a");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> cache.execute("find-playlist", "key", fingerprint, () -> {
+                started.countDown();
+                release.await();
+                return countedRun();
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<String> retry = executor.submit(() -> cache.execute("find-playlist", "key", fingerprint,
+                    this::countedRun));
+
+            release.countDown();
+            assertEquals("run-1", first.get(5, TimeUnit.SECONDS));
+            assertEquals("run-1", retry.get(5, TimeUnit.SECONDS));
+            assertEquals(1, runs.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void waiterGivesUpOnSlowRequest() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(10, TTL, Duration.ofMillis(50), clock::get);
+        byte[] fingerprint = IdempotencyCache.fingerprint("a");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> cache.execute("like-song", "key", fingerprint, () -> {
+                started.countDown();
+                release.await();
+                return "done";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                    () -> cache.execute("like-song", "key", fingerprint, this::countedRun));
+            assertEquals(HttpStatus.CONFLICT, e.getStatus());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void staysWithinCapacity() {
+        IdempotencyCache cache = cache(3);
+        byte[] fingerprint = IdempotencyCache.fingerprint();
+
+        for (int i = 0; i < 10; i++) {
+            cache.execute("add-artist", "key" + i, fingerprint, this::countedRun);
+            assertTrue(cache.size() <= 3);
+        }
+
+        // The oldest keys were evicted and run again; the newest are still replayed
+        assertEquals("run-11", cache.execute("add-artist", "key0", fingerprint, this::countedRun));
+        assertEquals("run-10", cache.execute("add-artist", "key9", fingerprint, this::countedRun));
+    }
+
+    @Test
+    public void failuresDoNotTakeUpCapacity() {
+        // Room for the two stored results plus one request in flight
+        IdempotencyCache cache = cache(3);
+        byte[] fingerprint = IdempotencyCache.fingerprint();
+
+        cache.execute("like-song", "ok1", fingerprint, this::countedRun);
+        cache.execute("like-song", "ok2", fingerprint, this::countedRun);
+        for (int i = 0; i < 5; i++) {
+            String key = "missing" + i;
+            assertThrows(Exception.class, () -> cache.execute("like-song", key, fingerprint, () -> {
+                throw new Exception("Song does not exist");
+            }));
+        }
+
+        assertEquals("run-1", cache.execute("like-song", "ok1", fingerprint, this::countedRun));
+        assertEquals("run-2", cache.execute("like-song", "ok2", fingerprint, this::countedRun));
+        assertEquals(2, runs.get());
+    }
+}
@@ -0,0 +1,79 @@
+package com.driver.test;
+
+import com.driver.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class IdempotentEndpointsTest {
+
+    private MockMvc mockMvc;
+    private SpotifyRepository spotifyRepository;
+
+    @BeforeEach
+    public void setUp() {
+        SpotifyController spotifyController = new SpotifyController();
+        SpotifyService spotifyService = (SpotifyService) ReflectionTestUtils.getField(spotifyController, "spotifyService");
+        spotifyRepository = (SpotifyRepository) ReflectionTestUtils.getField(spotifyService, "spotifyRepository");
+        mockMvc = MockMvcBuilders.standaloneSetup(spotifyController).build();
+    }
+
+    private static MockHttpServletRequestBuilder addUser(String name, String mobile) {
+        return post("/spotify/add-user").param("name", name).param("mobile", mobile);
+    }
+
+    @Test
+    public void retriedAddUserCreatesOneUser() throws Exception {
+        mockMvc.perform(addUser("Asha", "9000").header(SpotifyController.IDEMPOTENCY_KEY_HEADER, "retry-1"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Success"));
+        mockMvc.perform(addUser("Asha", "9000").header(SpotifyController.IDEMPOTENCY_KEY_HEADER, "retry-1")
+                .with(request -> {
+                    // A retry after a network change arrives from another address
+                    request.setRemoteAddr("10.0.0.99");
+                    return request;
+                }))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Success"));
+
+        assertEquals(1, spotifyRepository.users.size());
+    }
+
+    @Test
+    public void requestsWithoutKeyAreNotDeduplicated() throws Exception {
+        mockMvc.perform(addUser("Asha", "9000")).andExpect(status().isOk());
+        mockMvc.perform(addUser("Asha", "9000")).andExpect(status().isOk());
+
+        assertEquals(2, spotifyRepository.users.size());
+    }
+
+    @Test
+    public void reusedKeyWithOtherParametersIsRejected() throws Exception {
+        mockMvc.perform(addUser("Asha", "9000").header(SpotifyController.IDEMPOTENCY_KEY_HEADER, "shared"))
+                .andExpect(status().isOk());
+        mockMvc.perform(addUser("Ravi", "9001").header(SpotifyController.IDEMPOTENCY_KEY_HEADER, "shared"))
+                .andExpect(status().isUnprocessableEntity());
+
+        assertEquals(1, spotifyRepository.users.size());
+    }
+
+    @Test
+    public void keysAreScopedPerEndpoint() throws Exception {
+        mockMvc.perform(addUser("Asha", "9000").header(SpotifyController.IDEMPOTENCY_KEY_HEADER, "shared"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/spotify/add-artist").param("name", "Asha")
+                .header(SpotifyController.IDEMPOTENCY_KEY_HEADER, "shared"))
+                .andExpect(status().isOk());
+
+        assertEquals(1, spotifyRepository.users.size());
+        assertEquals(1, spotifyRepository.artists.size());
+    }
+}